@@ -0,0 +1,63 @@
+package com.kash.stord.tinyurl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns every mapping id to exactly one peer (app instance) using consistent hashing.
+ * <br/>
+ * Each peer is placed on the ring at {@link #VIRTUAL_NODES_PER_PEER} points, an id is owned by the first peer
+ * point at or after hash of the id. Adding/removing a peer only moves ~1/N of ids to/from that peer.
+ * All instances must be configured with same list of peers to agree on owners.
+ */
+public class ConsistentHashRing {
+    static final int VIRTUAL_NODES_PER_PEER = 128;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> peers) {
+        for (String peer : peers) {
+            for (int i = 0; i < VIRTUAL_NODES_PER_PEER; i++) {
+                ring.put(hash(peer + "#" + i), peer);
+            }
+        }
+    }
+
+    /**
+     * @param id mapping id, i.e. decoded short URL
+     * @return peer owning the id, null if ring is empty
+     */
+    public String ownerOf(long id) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(mix(id));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    static long hash(String peerPoint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(peerPoint.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Ids are sequential, spread them over the whole ring (SplitMix64 finalizer).
+    static long mix(long id) {
+        long z = id;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
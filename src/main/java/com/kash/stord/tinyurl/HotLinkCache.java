@@ -0,0 +1,43 @@
+package com.kash.stord.tinyurl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory LRU cache of recently resolved mappings: id -> long URL as compact bytes (see {@link UrlCodec}).
+ * <br/>
+ * Mappings are immutable once created, so entries never need invalidation, only eviction.
+ * Shared with other app instances in cluster mode via {@link PeerCacheServer}.
+ */
+@Component
+public class HotLinkCache {
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final Map<Long, byte[]> lru;
+
+    public HotLinkCache(@Value("${tinyurl.cache.max-entries:" + DEFAULT_MAX_ENTRIES + "}") int maxEntries) {
+        // FIXME: access-order LinkedHashMap mutates on get() too, hence fully synchronized. If lock contention
+        //        shows up in profiles, switch to a striped/concurrent cache (e.g. Caffeine).
+        this.lru = Collections.synchronizedMap(new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public byte[] get(long id) {
+        return lru.get(id);
+    }
+
+    public void put(long id, byte[] encodedLongUrl) {
+        lru.put(id, encodedLongUrl);
+    }
+
+    public int size() {
+        return lru.size();
+    }
+}
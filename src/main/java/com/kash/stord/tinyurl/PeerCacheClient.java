@@ -0,0 +1,256 @@
+package com.kash.stord.tinyurl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cluster mode: fetches a mapping from {@link HotLinkCache} of the peer owning it (see {@link ConsistentHashRing}).
+ * <br/>
+ * A peer that can't be connected to is skipped for {@link #PEER_DOWN_BACKOFF_MILLIS}, so lookups don't all wait
+ * for connect timeout while it's down/restarting. A slow answer from a reachable peer only fails that one lookup.
+ * Keeps a few idle connections per peer to avoid a TCP handshake per lookup.
+ */
+@Component
+public class PeerCacheClient {
+    private static final Logger logger = LogManager.getLogger();
+    static final int MAX_IDLE_CONNECTIONS_PER_PEER = 8;
+    static final long PEER_DOWN_BACKOFF_MILLIS = 5000;
+
+    private final boolean enabled;
+    private final String self;
+    private final ConsistentHashRing ring;
+    private final Map<String, InetSocketAddress> peerAddresses = new ConcurrentHashMap<>();
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final Map<String, ConcurrentLinkedQueue<PeerConnection>> idleConnections = new ConcurrentHashMap<>();
+    private final Map<String, Long> peerDownUntil = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled              cluster mode on/off. When off, {@link #fetchFromOwner(long)} never asks anyone.
+     * @param self                 "host:port" of this instance, as it appears in peers.
+     * @param peers                comma separated "host:port" of all instances (including this one).
+     * @param connectTimeoutMillis connect timeout for a peer, on expiry the peer is considered down.
+     * @param readTimeoutMillis    how long to wait for an answer, includes owner reading its DB on a cache miss.
+     */
+    public PeerCacheClient(@Value("${tinyurl.cluster.enabled:false}") boolean enabled,
+                           @Value("${tinyurl.cluster.self:}") String self,
+                           @Value("${tinyurl.cluster.peers:}") String peers,
+                           @Value("${tinyurl.cluster.connect-timeout-millis:50}") int connectTimeoutMillis,
+                           @Value("${tinyurl.cluster.read-timeout-millis:500}") int readTimeoutMillis) {
+        List<String> peerList = enabled ? parsePeers(peers) : Collections.emptyList();
+        for (String peer : peerList) {
+            peerAddresses.put(peer, PeerProtocol.parseAddress(peer));
+        }
+        this.enabled = enabled;
+        this.self = self.trim();
+        this.ring = new ConsistentHashRing(peerList);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        if (enabled) {
+            if (!peerList.contains(this.self)) {
+                logger.warn("self: '{}' is not one of peers: {}, this instance will not own any mappings.",
+                    this.self, peerList);
+            }
+            logger.info("Cluster mode enabled. self: '{}', peers: {}", this.self, peerList);
+        }
+    }
+
+    static PeerCacheClient disabled() {
+        return new PeerCacheClient(false, "", "", 0, 0);
+    }
+
+    public String ownerOf(long id) {
+        return ring.ownerOf(id);
+    }
+
+    /**
+     * @param id mapping id
+     * @return what the owning peer answered. {@link Result#UNAVAILABLE} if cluster mode is off, this instance owns
+     *     the id or owner could not be reached in time.
+     */
+    public Result fetchFromOwner(long id) {
+        if (!enabled) {
+            return Result.UNAVAILABLE;
+        }
+        // Ids of valid short URLs are always positive, nobody has anything for the rest.
+        if (id <= 0) {
+            return Result.MISS;
+        }
+        String owner = ring.ownerOf(id);
+        if (owner == null || owner.equals(self)) {
+            return Result.UNAVAILABLE;
+        }
+        return fetch(owner, id);
+    }
+
+    Result fetch(String peer, long id) {
+        Long downUntil = peerDownUntil.get(peer);
+        if (downUntil != null && downUntil > System.currentTimeMillis()) {
+            return Result.UNAVAILABLE;
+        }
+
+        PeerConnection idle = idleQueue(peer).poll();
+        if (idle != null) {
+            try {
+                return exchange(peer, idle, id);
+            } catch (SocketTimeoutException e) {
+                logger.debug("No answer from peer: {} for id: {} in {} ms.", peer, id, readTimeoutMillis);
+                return Result.UNAVAILABLE;
+            } catch (IOException e) {
+                // Stale idle connection, e.g. peer restarted since. Retry once on a new one.
+                logger.debug("Idle connection to peer: {} failed, reconnecting. {}", peer, e.toString());
+            }
+        }
+
+        PeerConnection connection;
+        try {
+            connection = connect(peer);
+        } catch (IOException e) {
+            // Only log when peer goes down, not for every lookup while it stays down.
+            if (peerDownUntil.put(peer, System.currentTimeMillis() + PEER_DOWN_BACKOFF_MILLIS) == null) {
+                logger.warn("Peer: {} unreachable, reading its mappings from DB until it's back. {}", peer,
+                    e.toString());
+            }
+            return Result.UNAVAILABLE;
+        }
+        if (peerDownUntil.remove(peer) != null) {
+            logger.info("Peer: {} reachable again.", peer);
+        }
+
+        try {
+            return exchange(peer, connection, id);
+        } catch (IOException e) {
+            logger.debug("Failed to fetch id: {} from peer: {}. {}", id, peer, e.toString());
+            return Result.UNAVAILABLE;
+        }
+    }
+
+    private Result exchange(String peer, PeerConnection connection, long id) throws IOException {
+        Result result;
+        try {
+            PeerProtocol.writeGet(connection.out, id);
+            result = PeerProtocol.readResponse(connection.in);
+        } catch (IOException | RuntimeException e) {
+            PeerProtocol.closeQuietly(connection);
+            throw e;
+        }
+        release(peer, connection);
+        logger.debug("peer: {}, id: {}, answered: {}, hit: {}", peer, id, result.isAnswered(),
+            result.getEncodedLongUrl() != null);
+        return result;
+    }
+
+    private PeerConnection connect(String peer) throws IOException {
+        InetSocketAddress address = peerAddresses.get(peer);
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), connectTimeoutMillis);
+            socket.setSoTimeout(readTimeoutMillis);
+            return new PeerConnection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void release(String peer, PeerConnection connection) {
+        ConcurrentLinkedQueue<PeerConnection> idle = idleQueue(peer);
+        // size() is O(n), but n is tiny
+        if (idle.size() < MAX_IDLE_CONNECTIONS_PER_PEER) {
+            idle.offer(connection);
+        } else {
+            PeerProtocol.closeQuietly(connection);
+        }
+    }
+
+    private ConcurrentLinkedQueue<PeerConnection> idleQueue(String peer) {
+        return idleConnections.computeIfAbsent(peer, p -> new ConcurrentLinkedQueue<>());
+    }
+
+    @PreDestroy
+    public void close() {
+        for (ConcurrentLinkedQueue<PeerConnection> idle : idleConnections.values()) {
+            PeerConnection connection;
+            while ((connection = idle.poll()) != null) {
+                PeerProtocol.closeQuietly(connection);
+            }
+        }
+    }
+
+    static List<String> parsePeers(String peers) {
+        return Arrays.stream(peers.split(",")).map(String::trim).filter(p -> !p.isEmpty()).distinct()
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Answer of the owning peer: a hit, a miss (owner has checked DB too) or no answer at all.
+     */
+    public static final class Result {
+        static final Result UNAVAILABLE = new Result(false, null);
+        static final Result MISS = new Result(true, null);
+
+        private final boolean answered;
+        private final byte[] encodedLongUrl;
+
+        private Result(boolean answered, byte[] encodedLongUrl) {
+            this.answered = answered;
+            this.encodedLongUrl = encodedLongUrl;
+        }
+
+        static Result hit(byte[] encodedLongUrl) {
+            return new Result(true, encodedLongUrl);
+        }
+
+        /**
+         * @return false if owner was not asked or did not answer, caller has to read DB itself.
+         */
+        public boolean isAnswered() {
+            return answered;
+        }
+
+        /**
+         * @return compact long URL, null if owner answered with a miss or did not answer.
+         */
+        public byte[] getEncodedLongUrl() {
+            return encodedLongUrl;
+        }
+    }
+
+    private static class PeerConnection implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        PeerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.kash.stord.tinyurl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cluster mode: serves this instance's {@link HotLinkCache} to peers (see {@link PeerCacheClient}).
+ * <br/>
+ * A peer only asks for ids this instance owns, so on a cache miss the mapping is read from DB here
+ * and cached. That way each mapping is read from DB by (mostly) one instance only.
+ * <br/>
+ * There is no authentication, bind only to an interface reachable by peers alone. Connections beyond
+ * max-connections are closed right after accept, peers then read their DB instead. Connections idle for
+ * idle-timeout-millis are closed, so peers that vanish without closing theirs don't hold threads forever.
+ */
+@Component
+public class PeerCacheServer {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final HotLinkCache cache;
+    private final TinyUrlRepository repository;
+    private final boolean enabled;
+    private final String self;
+    private final int peerCount;
+    private final String bindAddress;
+    private final int maxConnections;
+    private final int idleTimeoutMillis;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    // Only touched by accept loop
+    private boolean rejecting;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    /**
+     * @param enabled           cluster mode on/off. When off, nothing is started.
+     * @param self              "host:port" of this instance, listens on that port.
+     * @param peers             comma separated "host:port" of all instances, to check maxConnections against.
+     * @param bindAddress       interface to listen on, host of self if empty.
+     * @param maxConnections    max peer connections served at once, one thread each.
+     * @param idleTimeoutMillis close a connection after this long without a request.
+     */
+    @Autowired
+    public PeerCacheServer(HotLinkCache cache, TinyUrlRepository repository,
+                           @Value("${tinyurl.cluster.enabled:false}") boolean enabled,
+                           @Value("${tinyurl.cluster.self:}") String self,
+                           @Value("${tinyurl.cluster.peers:}") String peers,
+                           @Value("${tinyurl.cluster.bind-address:}") String bindAddress,
+                           @Value("${tinyurl.cluster.max-connections:64}") int maxConnections,
+                           @Value("${tinyurl.cluster.idle-timeout-millis:60000}") int idleTimeoutMillis) {
+        this.cache = cache;
+        this.repository = repository;
+        this.enabled = enabled;
+        this.self = self.trim();
+        this.peerCount = PeerCacheClient.parsePeers(peers).size();
+        this.bindAddress = bindAddress.trim();
+        this.maxConnections = maxConnections;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Every other instance may keep this many idle connections to us.
+        int expectedConnections = PeerCacheClient.MAX_IDLE_CONNECTIONS_PER_PEER * Math.max(peerCount - 1, 0);
+        if (maxConnections < expectedConnections) {
+            logger.warn("max-connections: {} is below {} idle connections {} peers may keep open, some lookups " +
+                "will be refused and read from DB instead.", maxConnections, expectedConnections, peerCount - 1);
+        }
+
+        InetSocketAddress address = PeerProtocol.parseAddress(self);
+        String host = bindAddress.isEmpty() ? address.getHostString() : bindAddress;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(host, address.getPort()));
+        // +1 for the accept loop, which keeps connections at or below maxConnections.
+        executor = Executors.newFixedThreadPool(maxConnections + 1, runnable -> {
+            Thread thread = new Thread(runnable, "peer-cache-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::acceptLoop);
+        logger.info("Serving hot link cache to peers on: {}", serverSocket.getLocalSocketAddress());
+    }
+
+    @PreDestroy
+    public void stop() {
+        PeerProtocol.closeQuietly(serverSocket);
+        // Closing sockets unblocks threads stuck reading them, interrupt alone doesn't.
+        for (Socket socket : connections) {
+            PeerProtocol.closeQuietly(socket);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getLocalPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (connections.size() >= maxConnections) {
+                    // Only log when we start refusing, not for every refused connection.
+                    if (!rejecting) {
+                        rejecting = true;
+                        logger.warn("Refusing peer connections, already serving max-connections: {}. " +
+                            "Peers read their DB instead.", maxConnections);
+                    }
+                    logger.debug("Refusing peer connection from: {}", socket.getRemoteSocketAddress());
+                    PeerProtocol.closeQuietly(socket);
+                    continue;
+                }
+                if (rejecting) {
+                    rejecting = false;
+                    logger.info("Accepting peer connections again.");
+                }
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(idleTimeoutMillis);
+                connections.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Failed to accept peer connection.", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            Long id;
+            while ((id = PeerProtocol.readGet(in)) != null) {
+                answer(out, id);
+            }
+        } catch (SocketTimeoutException e) {
+            logger.debug("Closing peer connection from: {}, idle for {} ms.", socket.getRemoteSocketAddress(),
+                idleTimeoutMillis);
+        } catch (SocketException e) {
+            logger.debug("Peer connection closed: {}", e.toString());
+        } catch (IOException e) {
+            logger.warn("Dropping peer connection from: {}", socket.getRemoteSocketAddress(), e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void answer(DataOutputStream out, long id) throws IOException {
+        byte[] encodedLongUrl = cache.get(id);
+        if (encodedLongUrl == null) {
+            UrlMapping mapping;
+            try {
+                mapping = repository.findById(id).orElse(null);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected exception looking up id: {} for peer.", id, e);
+                PeerProtocol.writeUnavailable(out);
+                return;
+            }
+            if (mapping != null && !mapping.hasCompactBytes()) {
+                // Can't be cached or sent, peer has to read it from DB itself.
+                PeerProtocol.writeUnavailable(out);
+                return;
+            }
+            if (mapping != null) {
+                encodedLongUrl = mapping.toCompactBytes();
+                cache.put(id, encodedLongUrl);
+            }
+        }
+        PeerProtocol.writeResponse(out, encodedLongUrl);
+    }
+}
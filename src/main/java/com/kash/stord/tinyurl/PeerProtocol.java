@@ -0,0 +1,116 @@
+package com.kash.stord.tinyurl;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Binary protocol between app instances to share {@link HotLinkCache} entries, over a plain TCP connection.
+ * <p>
+ * Request:  [OP_GET: 1 byte][id: 8 bytes, big endian]
+ * Response: [STATUS_MISS: 1 byte]
+ * or        [STATUS_HIT: 1 byte][length: 4 bytes, big endian][long URL as compact bytes, see {@link UrlCodec}]
+ * or        [STATUS_UNAVAILABLE: 1 byte], owner can't answer (e.g. its DB failed), peer reads its own DB instead
+ * <p>
+ * A connection carries any number of request/response pairs, strictly one at a time.
+ */
+final class PeerProtocol {
+    private static final Logger logger = LogManager.getLogger();
+    static final int OP_GET = 'G';
+    static final int STATUS_MISS = 0;
+    static final int STATUS_HIT = 1;
+    static final int STATUS_UNAVAILABLE = 2;
+    // Far beyond any sane URL. Guards against allocating garbage lengths from a confused peer.
+    static final int MAX_VALUE_LENGTH = 64 * 1024;
+
+    static void writeGet(DataOutputStream out, long id) throws IOException {
+        out.writeByte(OP_GET);
+        out.writeLong(id);
+        out.flush();
+    }
+
+    /**
+     * @return id requested, or null if peer closed the connection
+     */
+    static Long readGet(DataInputStream in) throws IOException {
+        int op = in.read();
+        if (op == -1) {
+            return null;
+        }
+        if (op != OP_GET) {
+            throw new IOException("Unknown op: " + op);
+        }
+        return in.readLong();
+    }
+
+    static void writeResponse(DataOutputStream out, byte[] encodedLongUrl) throws IOException {
+        if (encodedLongUrl == null) {
+            out.writeByte(STATUS_MISS);
+        } else {
+            out.writeByte(STATUS_HIT);
+            out.writeInt(encodedLongUrl.length);
+            out.write(encodedLongUrl);
+        }
+        out.flush();
+    }
+
+    static void writeUnavailable(DataOutputStream out) throws IOException {
+        out.writeByte(STATUS_UNAVAILABLE);
+        out.flush();
+    }
+
+    static PeerCacheClient.Result readResponse(DataInputStream in) throws IOException {
+        int status = in.readUnsignedByte();
+        if (status == STATUS_MISS) {
+            return PeerCacheClient.Result.MISS;
+        }
+        if (status == STATUS_UNAVAILABLE) {
+            return PeerCacheClient.Result.UNAVAILABLE;
+        }
+        if (status != STATUS_HIT) {
+            throw new IOException("Unknown status: " + status);
+        }
+        int length = in.readInt();
+        if (length < 0 || length > MAX_VALUE_LENGTH) {
+            throw new IOException("Invalid value length: " + length);
+        }
+        byte[] encodedLongUrl = new byte[length];
+        in.readFully(encodedLongUrl);
+        return PeerCacheClient.Result.hit(encodedLongUrl);
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Ignoring failure to close peer connection.", e);
+        }
+    }
+
+    /**
+     * @param peer "host:port"
+     */
+    static InetSocketAddress parseAddress(String peer) {
+        int colon = peer.lastIndexOf(':');
+        if (colon <= 0 || colon == peer.length() - 1) {
+            throw new IllegalArgumentException("Peer must be host:port, got: '" + peer + "'");
+        }
+        try {
+            return InetSocketAddress.createUnresolved(peer.substring(0, colon),
+                Integer.parseInt(peer.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Peer must be host:port, got: '" + peer + "'", e);
+        }
+    }
+
+    private PeerProtocol() {
+        // Use static methods. No instance needed.
+    }
+}
@@ -4,6 +4,7 @@ package com.kash.stord.tinyurl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import javassist.NotFoundException;
 import org.apache.commons.validator.routines.UrlValidator;
@@ -12,6 +13,7 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -39,10 +41,24 @@ public class TinyUrlRestController {
         "An unexpected error occurred. If problem persists, please contact support with correlation id: ";
 
     private final TinyUrlRepository repository;
+    private final boolean compactLongUrls;
+    private final HotLinkCache hotLinkCache;
+    private final PeerCacheClient peerCacheClient;
 
+    /**
+     * @param repo            DB access
+     * @param compactLongUrls if true, new mappings store long URL as compact bytes (see {@link UrlMapping}).
+     * @param hotLinkCache    recently resolved mappings, checked before peers and DB
+     * @param peerCacheClient in cluster mode, fetches mappings owned by other instances from their cache
+     */
     @Autowired
-    public TinyUrlRestController(TinyUrlRepository repo) {
+    public TinyUrlRestController(TinyUrlRepository repo,
+                                 @Value("${tinyurl.compact-long-urls:false}") boolean compactLongUrls,
+                                 HotLinkCache hotLinkCache, PeerCacheClient peerCacheClient) {
         this.repository = repo;
+        this.compactLongUrls = compactLongUrls;
+        this.hotLinkCache = hotLinkCache;
+        this.peerCacheClient = peerCacheClient;
     }
 
     /**
@@ -78,6 +94,12 @@ public class TinyUrlRestController {
 
         try {
             String longUrl = body.longUrl;
+            if (longUrl != null && longUrl.getBytes(StandardCharsets.UTF_8).length > UrlCodec.MAX_URL_BYTES) {
+                String errMsg = String.format("Supplied longUrl is longer than %d bytes.", UrlCodec.MAX_URL_BYTES);
+                logger.warn(errMsg);
+                return ResponseEntity.badRequest().header(X_CORRELATION_ID, correlationId)
+                    .body(body.withMessage(errMsg).witHttpStatusCode(HttpStatus.BAD_REQUEST));
+            }
             if (!UrlValidator.getInstance().isValid(longUrl)) {
                 // FIXME: Would be nice to specify what's wrong with URL and not just say it's bad URL.
                 //        But there is not standard validator and Apache one only returns bool.
@@ -88,7 +110,8 @@ public class TinyUrlRestController {
                     .body(body.withMessage(errMsg).witHttpStatusCode(HttpStatus.BAD_REQUEST));
             }
 
-            UrlMapping newMapping = repository.save(new UrlMapping(longUrl));
+            UrlMapping newMapping = repository.save(
+                compactLongUrls ? new UrlMapping(UrlCodec.encode(longUrl)) : new UrlMapping(longUrl));
             String shortUrl = NumToStrBijectiveConverter.numToStr(newMapping.getId());
 
             logger.info("returning newMapping.getId(): {}, shortUrl: {}", newMapping.getId(), shortUrl);
@@ -179,11 +202,31 @@ public class TinyUrlRestController {
 
     private String resolveToLongUrl(String shortUrl) throws NotFoundException {
         long id = NumToStrBijectiveConverter.strToNum(shortUrl);
-        UrlMapping resolvedUrlMapping = repository.findById(id).orElse(null);
-        if (null == resolvedUrlMapping) {
+        byte[] encodedLongUrl = hotLinkCache.get(id);
+        String source = "cache";
+        if (null == encodedLongUrl) {
+            PeerCacheClient.Result fromPeer = peerCacheClient.fetchFromOwner(id);
+            if (fromPeer.isAnswered()) {
+                encodedLongUrl = fromPeer.getEncodedLongUrl();
+                source = "peer " + peerCacheClient.ownerOf(id);
+            } else {
+                UrlMapping resolvedUrlMapping = repository.findById(id).orElse(null);
+                source = "DB";
+                if (resolvedUrlMapping != null && !resolvedUrlMapping.hasCompactBytes()) {
+                    logger.info("resolved '{}' to: id: {}, oversized longUrl not cached.", shortUrl, id);
+                    return resolvedUrlMapping.getLongUrl();
+                }
+                encodedLongUrl = resolvedUrlMapping == null ? null : resolvedUrlMapping.toCompactBytes();
+            }
+            if (null != encodedLongUrl) {
+                hotLinkCache.put(id, encodedLongUrl);
+            }
+        }
+
+        if (null == encodedLongUrl) {
             // FIXME: We could distinguish between a key that's not found and one that's not valid (id is -ve),
             //        but letting end user know should be considered helping them if they're trying to exploit.
-            logger.warn("no mapping found for shortUrl: {}, id: {} in DB.", shortUrl, id);
+            logger.warn("no mapping found for shortUrl: {}, id: {} in {}.", shortUrl, id, source);
             String errMsg = String.format("<br/>No mapping found for shortUrl: %s. Did you <a target=\"_blank\" " +
                 "href=\"http://localhost:8080/\" rel=\"noopener noreferrer\" " +
                 "onmouseover=\"window.status='http://localhost:8080/';\" onmouseout=\"window.status='';\">" +
@@ -192,9 +235,10 @@ public class TinyUrlRestController {
             throw new NotFoundException(errMsg);
         }
 
-        logger.info("resolved '{}' to: resolvedUrlMapping: '{}'", shortUrl, resolvedUrlMapping);
+        String longUrl = UrlCodec.decode(encodedLongUrl);
+        logger.info("resolved '{}' from {} to: id: {}, longUrl: '{}'", shortUrl, source, id, longUrl);
 
-        return resolvedUrlMapping.getLongUrl();
+        return longUrl;
     }
 
     // ------------- front-end -------------
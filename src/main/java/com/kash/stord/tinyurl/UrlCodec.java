@@ -0,0 +1,171 @@
+package com.kash.stord.tinyurl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * UrlCodec: Compact, lossless storage encoding for long URLs.
+ * <p>
+ * Encoded layout: one header byte followed by the remainder of the URL.
+ * + header bits 0-6: index into {@link #PREFIXES}, the longest scheme/host prefix the URL starts with (0 = none)
+ * + header bit 7: set if the remainder is raw-deflated using the preset dictionary {@link #DICTIONARY},
+ * clear if the remainder is plain UTF-8 (used when deflating does not make it smaller)
+ * <p>
+ * Both tables are part of the on-disk format, entries must only ever be appended to {@link #PREFIXES} and
+ * {@link #DICTIONARY} must never change, otherwise previously stored values can no longer be decoded.
+ * <p>
+ * Decoded URLs are limited to {@link #MAX_URL_BYTES}, so a corrupt value can't inflate into megabytes.
+ * <p>
+ * Example:
+ * "https://www.youtube.com/watch?v=dQw4w9WgXcQ" (43 bytes) <=> [0x0a, "dQw4w9WgXcQ"] (12 bytes)
+ */
+public class UrlCodec {
+
+    public static final int MAX_URL_BYTES = 64 * 1024;
+
+    private static final String[] PREFIXES = {
+        "",
+        "http://",
+        "https://",
+        "http://www.",
+        "https://www.",
+        "https://www.google.com/",
+        "https://www.google.com/search?q=",
+        "https://docs.google.com/",
+        "https://drive.google.com/",
+        "https://en.wikipedia.org/wiki/",
+        "https://www.youtube.com/watch?v=",
+        "https://youtu.be/",
+        "https://github.com/",
+        "https://stackoverflow.com/questions/",
+        "https://www.amazon.com/",
+        "https://www.linkedin.com/",
+        "https://www.facebook.com/",
+        "https://twitter.com/",
+        "https://www.reddit.com/r/",
+        "https://medium.com/",
+    };
+
+    // Hand-picked common path/query fragments, not trained on a corpus. Deflate favours matches near the end,
+    // so the fragments expected to be most frequent (tracking parameters) are last.
+    private static final byte[] DICTIONARY = (
+        ".html.htm.php.aspx.jsp/index/en-us/en/blog/news/article/products/search/wiki/watch/status/" +
+            "?id=?q=&q=&page=&lang=en&hl=en&sort=&ref=&source=&s=&t=&tag=&sid=&session=&v=" +
+            ".co.uk/.org/.net/.io/.com/" +
+            "&fbclid=&gclid=&mc_cid=&mc_eid=&_ga=&ref_src=" +
+            "?utm_source=&utm_medium=email&utm_medium=social&utm_medium=cpc" +
+            "&utm_campaign=&utm_content=&utm_term=&utm_source=&utm_medium="
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final int MAX_PREFIX_INDEX = 0x7f;
+    private static final int DEFLATED_FLAG = 0x80;
+
+    static {
+        if (PREFIXES.length > MAX_PREFIX_INDEX + 1) {
+            throw new IllegalStateException("Too many PREFIXES to fit in header byte: " + PREFIXES.length);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if longUrl is longer than {@link #MAX_URL_BYTES} in UTF-8
+     */
+    public static byte[] encode(String longUrl) {
+        if (longUrl.getBytes(StandardCharsets.UTF_8).length > MAX_URL_BYTES) {
+            throw new IllegalArgumentException("longUrl is longer than " + MAX_URL_BYTES + " bytes.");
+        }
+        int prefixIndex = longestPrefixIndex(longUrl);
+        byte[] remainder = longUrl.substring(PREFIXES[prefixIndex].length()).getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(remainder);
+
+        int header = prefixIndex;
+        byte[] body = remainder;
+        if (deflated.length < remainder.length) {
+            header |= DEFLATED_FLAG;
+            body = deflated;
+        }
+
+        byte[] encoded = new byte[1 + body.length];
+        encoded[0] = (byte) header;
+        System.arraycopy(body, 0, encoded, 1, body.length);
+        return encoded;
+    }
+
+    public static String decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            throw new IllegalArgumentException("Encoded longUrl must have at least a header byte.");
+        }
+        int header = encoded[0] & 0xff;
+        int prefixIndex = header & MAX_PREFIX_INDEX;
+        if (prefixIndex >= PREFIXES.length) {
+            throw new IllegalArgumentException("Unknown prefix index in encoded longUrl: " + prefixIndex);
+        }
+
+        if (encoded.length - 1 > MAX_URL_BYTES) {
+            throw new IllegalArgumentException("Encoded longUrl is longer than " + MAX_URL_BYTES + " bytes.");
+        }
+        byte[] body = Arrays.copyOfRange(encoded, 1, encoded.length);
+        byte[] remainder = (header & DEFLATED_FLAG) != 0 ? inflate(body) : body;
+        return PREFIXES[prefixIndex] + new String(remainder, StandardCharsets.UTF_8);
+    }
+
+    private static int longestPrefixIndex(String longUrl) {
+        int best = 0;
+        for (int i = 1; i < PREFIXES.length; i++) {
+            if (PREFIXES[i].length() > PREFIXES[best].length() && longUrl.startsWith(PREFIXES[i])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        // nowrap: raw deflate, no zlib header/checksum. Those 6 bytes would be most of a short URL.
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+            byte[] buf = new byte[256];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buf = new byte[256];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated deflated longUrl.");
+                }
+                out.write(buf, 0, n);
+                if (out.size() > MAX_URL_BYTES) {
+                    throw new IllegalArgumentException("Deflated longUrl inflates beyond " + MAX_URL_BYTES + " bytes.");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflated longUrl.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private UrlCodec() {
+        // Use static methods. No instance needed.
+    }
+}
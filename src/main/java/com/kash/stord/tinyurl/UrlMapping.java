@@ -1,5 +1,7 @@
 package com.kash.stord.tinyurl;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Objects;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -7,6 +9,10 @@ import javax.persistence.Id;
 
 /**
  * A simple DB Entity. Represents a mapping between a numeric id and a long URL.
+ * <br/>
+ * Long URL is stored either as plain text (longUrl) or compact bytes (encodedLongUrl, see {@link UrlCodec}).
+ * Only one of the two is populated. Compact bytes are decoded lazily in {@link #getLongUrl()}.
+ * Which one is used for new mappings is configurable, existing mappings are readable either way.
  */
 @Entity
 public class UrlMapping {
@@ -17,6 +23,8 @@ public class UrlMapping {
 
     private String longUrl;
 
+    private byte[] encodedLongUrl;
+
     protected UrlMapping() {
     }
 
@@ -24,6 +32,10 @@ public class UrlMapping {
         this.longUrl = longUrl;
     }
 
+    public UrlMapping(byte[] encodedLongUrl) {
+        this.encodedLongUrl = encodedLongUrl;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -33,12 +45,13 @@ public class UrlMapping {
             return false;
         }
         UrlMapping employee = (UrlMapping) o;
-        return Objects.equals(id, employee.id) && Objects.equals(longUrl, employee.longUrl);
+        return Objects.equals(id, employee.id) && Objects.equals(longUrl, employee.longUrl)
+            && Arrays.equals(encodedLongUrl, employee.encodedLongUrl);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, longUrl);
+        return 31 * Objects.hash(id, longUrl) + Arrays.hashCode(encodedLongUrl);
     }
 
     public Long getId() {
@@ -50,17 +63,43 @@ public class UrlMapping {
     }
 
     public String getLongUrl() {
-        return longUrl;
+        return longUrl != null || encodedLongUrl == null ? longUrl : UrlCodec.decode(encodedLongUrl);
     }
 
     public void setLongUrl(String originalUrl) {
         this.longUrl = originalUrl;
     }
 
+    public byte[] getEncodedLongUrl() {
+        return encodedLongUrl;
+    }
+
+    public void setEncodedLongUrl(byte[] encodedLongUrl) {
+        this.encodedLongUrl = encodedLongUrl;
+    }
+
+    /**
+     * @return false for plain rows longer than {@link UrlCodec#MAX_URL_BYTES}, stored before that limit existed.
+     *     Those are only available via {@link #getLongUrl()}.
+     */
+    public boolean hasCompactBytes() {
+        return encodedLongUrl != null || longUrl == null
+            || longUrl.getBytes(StandardCharsets.UTF_8).length <= UrlCodec.MAX_URL_BYTES;
+    }
+
+    /**
+     * @return long URL as compact bytes, as stored if it was stored compact, encoded now otherwise.
+     * @throws IllegalArgumentException if not {@link #hasCompactBytes()}
+     */
+    public byte[] toCompactBytes() {
+        return encodedLongUrl != null ? encodedLongUrl : UrlCodec.encode(longUrl);
+    }
+
     @Override
     public String toString() {
         // FIXME: JSON is more parsable. Helps extract info easily from logs for
         //        post-processing, create alerts, build dashboards etc.
-        return String.format("{\"id\": \"%d\", \"originalUrl\": \"%s\"}", id, longUrl);
+        return String.format("{\"id\": \"%d\", \"originalUrl\": \"%s\", \"encodedLength\": %d}", id,
+            getLongUrl(), encodedLongUrl == null ? 0 : encodedLongUrl.length);
     }
 }
@@ -0,0 +1,47 @@
+package com.kash.stord.tinyurl
+
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import spock.lang.Specification
+
+class ConsistentHashRingSpec extends Specification {
+    private static final Logger logger = LogManager.getLogger();
+    private static final List<String> PEERS = ["localhost:7070", "localhost:7071", "localhost:7072"]
+
+    def "empty ring should not own anything"() {
+        expect:
+        new ConsistentHashRing([]).ownerOf(1L) == null
+    }
+
+    def "instances with same peers in any order should agree on owner"() {
+        given:
+        def ring = new ConsistentHashRing(PEERS)
+        def otherRing = new ConsistentHashRing(PEERS.reverse())
+
+        expect:
+        (1L..1000L).every { ring.ownerOf(it) == otherRing.ownerOf(it) }
+    }
+
+    def "sequential ids should be spread over all peers"() {
+        given:
+        def ring = new ConsistentHashRing(PEERS)
+        def owned = (1L..30000L).countBy { ring.ownerOf(it) }
+        logger.debug(owned)
+
+        expect:
+        owned.keySet() == PEERS as Set
+        owned.values().every { it > 30000 / PEERS.size() * 0.7 }
+    }
+
+    def "adding a peer should only move ids to the new peer"() {
+        given:
+        def ring = new ConsistentHashRing(PEERS)
+        def biggerRing = new ConsistentHashRing(PEERS + "localhost:7073")
+        def moved = (1L..30000L).findAll { ring.ownerOf(it) != biggerRing.ownerOf(it) }
+        logger.debug("moved: {}", moved.size())
+
+        expect:
+        moved.every { biggerRing.ownerOf(it) == "localhost:7073" }
+        moved.size() < 30000 / 4 * 1.3
+    }
+}
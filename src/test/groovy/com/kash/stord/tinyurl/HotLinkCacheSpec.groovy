@@ -0,0 +1,36 @@
+package com.kash.stord.tinyurl
+
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import spock.lang.Specification
+
+class HotLinkCacheSpec extends Specification {
+    private static final Logger logger = LogManager.getLogger();
+
+    def "get should return what was put and null for anything else"() {
+        given:
+        def cache = new HotLinkCache(10)
+        def bytes = UrlCodec.encode("https://www.wikipedia.org/")
+        cache.put(1L, bytes)
+
+        expect:
+        cache.get(1L) == bytes
+        cache.get(2L) == null
+        cache.size() == 1
+    }
+
+    def "least recently used entry should be evicted when full"() {
+        given:
+        def cache = new HotLinkCache(2)
+        cache.put(1L, [1] as byte[])
+        cache.put(2L, [2] as byte[])
+        cache.get(1L)
+        cache.put(3L, [3] as byte[])
+
+        expect:
+        cache.size() == 2
+        cache.get(1L) != null
+        cache.get(2L) == null
+        cache.get(3L) != null
+    }
+}
@@ -42,6 +42,20 @@ class ModelCoverageSpec extends Specification {
         false  | new UrlMapping(id: 1, longUrl: "different longUrlInDB")
         false  | new UrlMapping(id: 2, longUrl: "longUrlInDB")
         false  | new UrlMapping(id: 2, longUrl: "different longUrlInDB")
+        false  | new UrlMapping(id: 1, encodedLongUrl: UrlCodec.encode("longUrlInDB"))
+    }
+
+    @Unroll
+    def "UrlMapping.getLongUrl() should return #longUrl for #tcName"() {
+        expect:
+        mapping.getLongUrl() == longUrl
+        mapping.toString().contains(String.valueOf(longUrl))
+
+        where:
+        tcName         | mapping                                                        | longUrl
+        "plain"        | new UrlMapping("https://www.wikipedia.org/")                   | "https://www.wikipedia.org/"
+        "compact"      | new UrlMapping(UrlCodec.encode("https://www.wikipedia.org/"))  | "https://www.wikipedia.org/"
+        "neither set"  | new UrlMapping(id: 1)                                          | null
     }
 
     @Unroll
@@ -0,0 +1,240 @@
+package com.kash.stord.tinyurl
+
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import org.springframework.http.HttpStatus
+import org.springframework.orm.jpa.JpaSystemException
+import spock.lang.Specification
+
+/**
+ * Runs peer server and client(s) on localhost, i.e. several instances of the app minus Spring/HTTP.
+ */
+class PeerCacheSpec extends Specification {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String LONG_URL = "https://www.wikipedia.org/wiki/TinyURL"
+    private static final String OVERSIZED_URL = "https://www.example.com/" + "a" * UrlCodec.MAX_URL_BYTES
+
+    def ownerRepo = Mock(TinyUrlRepository)
+    def ownerCache = new HotLinkCache(100)
+    def server = newServer("localhost:0", 4, 60000)
+    PeerCacheClient client
+
+    def setup() {
+        server.start()
+        client = clientOf(server, 1000)
+    }
+
+    def cleanup() {
+        client.close()
+        server.stop()
+    }
+
+    private PeerCacheServer newServer(String self, int maxConnections, int idleTimeoutMillis) {
+        return new PeerCacheServer(ownerCache, ownerRepo, true, self, "", "", maxConnections, idleTimeoutMillis)
+    }
+
+    // Owner is the only peer on the ring, so it owns every id. "localhost:1" owns nothing.
+    private static PeerCacheClient clientOf(PeerCacheServer owner, int readTimeoutMillis) {
+        return new PeerCacheClient(true, "localhost:1", "localhost:" + owner.localPort, 1000, readTimeoutMillis)
+    }
+
+    def "fetchFromOwner should return mapping from owner's cache without touching owner's DB"() {
+        given:
+        ownerCache.put(42L, UrlCodec.encode(LONG_URL))
+
+        when:
+        def fetched = (1..3).collect { client.fetchFromOwner(42L) }
+
+        then:
+        0 * ownerRepo.findById(_)
+        fetched.every { it.answered && UrlCodec.decode(it.encodedLongUrl) == LONG_URL }
+    }
+
+    def "owner should load a cache miss from its DB once and cache it"() {
+        when:
+        def first = client.fetchFromOwner(42L)
+        def second = client.fetchFromOwner(42L)
+
+        then:
+        1 * ownerRepo.findById(42L) >> Optional.of(new UrlMapping(id: 42L, longUrl: LONG_URL))
+        UrlCodec.decode(first.encodedLongUrl) == LONG_URL
+        UrlCodec.decode(second.encodedLongUrl) == LONG_URL
+        ownerCache.get(42L) != null
+    }
+
+    def "fetchFromOwner should return an answered miss when owner has no such mapping"() {
+        when:
+        def result = client.fetchFromOwner(42L)
+
+        then:
+        1 * ownerRepo.findById(42L) >> Optional.empty()
+        result.answered
+        result.encodedLongUrl == null
+    }
+
+    def "fetchFromOwner should return unavailable when owner's DB fails"() {
+        when:
+        def result = client.fetchFromOwner(42L)
+
+        then:
+        1 * ownerRepo.findById(42L) >> { throw new JpaSystemException(null) }
+        !result.answered
+    }
+
+    def "fetchFromOwner should return unavailable for a plain row too long to send, and keep the connection"() {
+        given:
+        ownerCache.put(43L, UrlCodec.encode(LONG_URL))
+
+        when:
+        def oversized = client.fetchFromOwner(42L)
+        def next = client.fetchFromOwner(43L)
+
+        then:
+        1 * ownerRepo.findById(42L) >> Optional.of(new UrlMapping(id: 42L, longUrl: OVERSIZED_URL))
+        !oversized.answered
+        ownerCache.get(42L) == null
+        UrlCodec.decode(next.encodedLongUrl) == LONG_URL
+        server.@connections.size() == 1
+    }
+
+    def "server should close connections idle for idle-timeout-millis"() {
+        given:
+        def impatient = newServer("localhost:0", 4, 200)
+        impatient.start()
+        def socket = new Socket("localhost", impatient.localPort)
+        socket.soTimeout = 2000
+
+        expect:
+        socket.inputStream.read() == -1
+
+        cleanup:
+        socket.close()
+        impatient.stop()
+    }
+
+    def "fetchFromOwner should not ask anyone when disabled, for invalid ids or when this instance is owner"() {
+        given:
+        def self = "localhost:" + server.localPort
+        def selfOwner = new PeerCacheClient(true, self, self, 1000, 1000)
+
+        expect:
+        !PeerCacheClient.disabled().fetchFromOwner(42L).answered
+        client.fetchFromOwner(-1L).answered
+        client.fetchFromOwner(-1L).encodedLongUrl == null
+        !selfOwner.fetchFromOwner(42L).answered
+    }
+
+    def "fetchFromOwner should return unavailable and skip owner for a while when it can't be connected to"() {
+        given:
+        ownerCache.put(42L, UrlCodec.encode(LONG_URL))
+        def port = server.localPort
+        client.fetchFromOwner(42L)
+        server.stop()
+
+        when:
+        def whileDown = client.fetchFromOwner(42L)
+        server = newServer("localhost:" + port, 4, 60000)
+        server.start()
+        def withinBackoff = client.fetchFromOwner(42L)
+
+        then:
+        !whileDown.answered
+        !withinBackoff.answered
+    }
+
+    def "slow answer should fail only that lookup, not mark owner down"() {
+        given:
+        def impatientClient = clientOf(server, 200)
+        ownerCache.put(43L, UrlCodec.encode(LONG_URL))
+
+        when:
+        def slow = impatientClient.fetchFromOwner(42L)
+        def next = impatientClient.fetchFromOwner(43L)
+
+        then:
+        1 * ownerRepo.findById(42L) >> { sleep(500); Optional.empty() }
+        !slow.answered
+        next.answered
+        UrlCodec.decode(next.encodedLongUrl) == LONG_URL
+
+        cleanup:
+        impatientClient.close()
+    }
+
+    def "server should listen on host of self and reject connections beyond max-connections"() {
+        given:
+        def small = newServer("localhost:0", 1, 60000)
+        small.start()
+        def first = new Socket("localhost", small.localPort)
+        def second = new Socket("localhost", small.localPort)
+        second.soTimeout = 1000
+
+        expect:
+        small.@serverSocket.inetAddress.loopbackAddress
+        second.inputStream.read() == -1
+
+        cleanup:
+        first.close()
+        second.close()
+        small.stop()
+    }
+
+    def "resolve on a cold instance should be served by owner instead of DB"() {
+        given:
+        ownerCache.put(42L, UrlCodec.encode(LONG_URL))
+        def coldRepo = Mock(TinyUrlRepository)
+        def coldInstance = new TinyUrlRestController(coldRepo, false, new HotLinkCache(100), client)
+
+        when:
+        def resp = coldInstance.resolveAndRedirect(NumToStrBijectiveConverter.numToStr(42L), null)
+
+        then:
+        0 * coldRepo.findById(_)
+        resp.statusCode == HttpStatus.MOVED_PERMANENTLY
+        resp.getHeaders().get("Location") == [LONG_URL]
+    }
+
+    def "resolve should return 404 without reading own DB when owner does not have the mapping"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def instance = new TinyUrlRestController(repo, false, new HotLinkCache(100), client)
+
+        when:
+        def resp = instance.resolveTinyurl(NumToStrBijectiveConverter.numToStr(42L), null)
+
+        then:
+        1 * ownerRepo.findById(42L) >> Optional.empty()
+        0 * repo.findById(_)
+        resp.statusCode == HttpStatus.NOT_FOUND
+    }
+
+    def "resolve should read own DB when owner can't send a plain row too long to cache"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def instance = new TinyUrlRestController(repo, false, new HotLinkCache(100), client)
+
+        when:
+        def resp = instance.resolveAndRedirect(NumToStrBijectiveConverter.numToStr(42L), null)
+
+        then:
+        1 * ownerRepo.findById(42L) >> Optional.of(new UrlMapping(id: 42L, longUrl: OVERSIZED_URL))
+        1 * repo.findById(42L) >> Optional.of(new UrlMapping(id: 42L, longUrl: OVERSIZED_URL))
+        resp.statusCode == HttpStatus.MOVED_PERMANENTLY
+        resp.getHeaders().get("Location") == [OVERSIZED_URL]
+    }
+
+    def "resolve should fall back to own DB when owner is unreachable"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def instance = new TinyUrlRestController(repo, false, new HotLinkCache(100), client)
+        server.stop()
+
+        when:
+        def resp = instance.resolveTinyurl(NumToStrBijectiveConverter.numToStr(42L), null)
+
+        then:
+        1 * repo.findById(42L) >> Optional.of(new UrlMapping(id: 42L, longUrl: LONG_URL))
+        resp.statusCode == HttpStatus.OK
+        resp.getBody().longUrl == LONG_URL
+    }
+}
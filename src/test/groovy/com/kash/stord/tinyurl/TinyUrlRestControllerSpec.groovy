@@ -10,11 +10,15 @@ import spock.lang.Unroll
 class TinyUrlRestControllerSpec extends Specification {
     private static final Logger logger = LogManager.getLogger();
 
+    private static TinyUrlRestController newController(TinyUrlRepository repo, boolean compactLongUrls = false) {
+        return new TinyUrlRestController(repo, compactLongUrls, new HotLinkCache(100), PeerCacheClient.disabled())
+    }
+
     @Unroll
     def "createTinyurl should succeed for #tcName with valid url #longUrl"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def hardcodedId = 1234567890L
         def hardcodedShortUrl = NumToStrBijectiveConverter.numToStr(hardcodedId)
         def myCorrelationId = UUID.randomUUID().toString()
@@ -45,11 +49,35 @@ class TinyUrlRestControllerSpec extends Specification {
         "with URL encoded" | "https://www.google.com/maps/place/817+W.+Peachtree+St.+NW+Suite+200+Atlanta%2C+GA+30308"
     }
 
+    def "createTinyurl should store compact longUrl when enabled and resolve it back"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def rc = newController(repo, true)
+        def hardcodedId = 1234567890L
+        def longUrl = "https://www.wikipedia.org/wiki/TinyURL"
+        UrlMapping objSavedToDb = null
+        1 * repo.save(_) >> {
+            objSavedToDb = it[0]
+            objSavedToDb.id = hardcodedId
+            return objSavedToDb
+        }
+        1 * repo.findById(hardcodedId) >> { Optional.of(objSavedToDb) }
+        def createResp = rc.createTinyurl(new UrlMappingPojo().withLongUrl(longUrl), null)
+        def redirectResp = rc.resolveAndRedirect(createResp.getBody().shortUrl, null)
+
+        expect:
+        objSavedToDb.@longUrl == null
+        UrlCodec.decode(objSavedToDb.encodedLongUrl) == longUrl
+        createResp.getBody().longUrl == longUrl
+        redirectResp.statusCode == HttpStatus.MOVED_PERMANENTLY
+        redirectResp.getHeaders().get("Location") == [longUrl]
+    }
+
     @Unroll
     def "createTinyurl should reject invalid url with #problem"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def resp = rc.createTinyurl(new UrlMappingPojo().withLongUrl(longUrl), UUID.randomUUID().toString())
 
         expect:
@@ -68,12 +96,13 @@ class TinyUrlRestControllerSpec extends Specification {
         "localhost"       | "http://localhost:8080"
         "invalid schema"  | "unknown:// "
         "wrong authority" | "ftp://::::@example.com"
+        "too long"        | "https://www.example.com/" + "a" * UrlCodec.MAX_URL_BYTES
     }
 
     def "createTinyurl should return 500 with error message when DB throws exception"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         1 * repo.save(_) >> { throw new JpaSystemException(null) }
         def resp = rc.createTinyurl(new UrlMappingPojo().withLongUrl("https://www.wikipedia.org"), "")
 
@@ -86,7 +115,7 @@ class TinyUrlRestControllerSpec extends Specification {
     def "resolveTinyurl should return 500 with error message when DB throws exception"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         1 * repo.findById(_) >> { throw new JpaSystemException(null) }
         def resp = rc.resolveTinyurl("hardcodedShortUrl", "")
 
@@ -99,7 +128,7 @@ class TinyUrlRestControllerSpec extends Specification {
     def "resolveTinyurl should return 404 when mapping is not found in DB"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def hardcodedId = 1234567890L
         def hardcodedShortUrl = NumToStrBijectiveConverter.numToStr(hardcodedId)
         1 * repo.findById(hardcodedId) >> Optional.ofNullable(null)
@@ -115,7 +144,7 @@ class TinyUrlRestControllerSpec extends Specification {
     def "resolveTinyurl should succeed when mapping exists in db"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def longUrlInDB = "https://www.wikipedia.org/"
         1 * repo.findById(id) >> Optional.ofNullable(new UrlMapping(id: id, longUrl: longUrlInDB))
         def resp = rc.resolveTinyurl(inputShortUrl, UUID.randomUUID().toString())
@@ -140,7 +169,7 @@ class TinyUrlRestControllerSpec extends Specification {
     def "resolveAndRedirect should redirect when mapping exists #id"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def longUrlInDB = "https://www.wikipedia.org/"
         1 * repo.findById(id) >> Optional.ofNullable(new UrlMapping(id: id, longUrl: longUrlInDB))
         def myCorrelationId = UUID.randomUUID().toString()
@@ -159,10 +188,44 @@ class TinyUrlRestControllerSpec extends Specification {
         1234L       | "Hn"          | HttpStatus.OK
     }
 
+    def "resolveAndRedirect should read a mapping from DB only once"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def rc = newController(repo)
+        def longUrlInDB = "https://www.wikipedia.org/"
+
+        when:
+        def responses = (1..3).collect { rc.resolveAndRedirect("Hn", null) }
+
+        then:
+        1 * repo.findById(1234L) >> Optional.ofNullable(new UrlMapping(id: 1234L, longUrl: longUrlInDB))
+        responses.every { it.statusCode == HttpStatus.MOVED_PERMANENTLY }
+        responses.every { it.getHeaders().get("Location") == [longUrlInDB] }
+    }
+
+    def "plain row longer than MAX_URL_BYTES, stored before the limit, should still resolve and redirect"() {
+        given:
+        def repo = Mock(TinyUrlRepository)
+        def rc = newController(repo)
+        def oversizedUrl = "https://www.example.com/" + "a" * UrlCodec.MAX_URL_BYTES
+
+        when:
+        def resolved = rc.resolveTinyurl("Hn", null)
+        def redirected = rc.resolveAndRedirect("Hn", null)
+
+        then:
+        // Not cached, so read from DB each time
+        2 * repo.findById(1234L) >> Optional.of(new UrlMapping(id: 1234L, longUrl: oversizedUrl))
+        resolved.statusCode == HttpStatus.OK
+        resolved.getBody().longUrl == oversizedUrl
+        redirected.statusCode == HttpStatus.MOVED_PERMANENTLY
+        redirected.getHeaders().get("Location") == [oversizedUrl]
+    }
+
     def "resolveTinyurl should return 404 when mapping is missing"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         def hardcodedId = 1234567890L
         def hardcodedShortUrl = NumToStrBijectiveConverter.numToStr(hardcodedId)
         1 * repo.findById(hardcodedId) >> Optional.ofNullable(null)
@@ -177,7 +240,7 @@ class TinyUrlRestControllerSpec extends Specification {
     def "resolveAndRedirect should return 500 with correlation id when DB throws exception"() {
         given:
         def repo = Mock(TinyUrlRepository)
-        def rc = new TinyUrlRestController(repo)
+        def rc = newController(repo)
         1 * repo.findById(_) >> { throw new JpaSystemException(null) }
         def resp = rc.resolveAndRedirect("ignored", "")
 
@@ -189,9 +252,9 @@ class TinyUrlRestControllerSpec extends Specification {
 
     def "index/root should not throw any exceptions"() {
         when:
-        def resp = new TinyUrlRestController(Mock(TinyUrlRepository)).index()
+        def resp = newController(Mock(TinyUrlRepository)).index()
         logger.debug(resp)
-        def favicon = new TinyUrlRestController(Mock(TinyUrlRepository)).favicon()
+        def favicon = newController(Mock(TinyUrlRepository)).favicon()
         logger.debug(resp.length())
 
         then:
@@ -0,0 +1,115 @@
+package com.kash.stord.tinyurl
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.Deflater
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.Logger
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class UrlCodecSpec extends Specification {
+    private static final Logger logger = LogManager.getLogger();
+
+    // Sample set behind the "bytes per mapping" table in README.md. Keep both in sync.
+    private static final List<String> SAMPLE_URLS = [
+        "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+        "https://en.wikipedia.org/wiki/URL_shortening",
+        "https://github.com/spring-projects/spring-boot/blob/main/README.adoc",
+        "https://stackoverflow.com/questions/11227809/why-is-processing-a-sorted-array-faster-than-processing-an-unsorted-array",
+        "https://www.amazon.com/dp/B08N5WRWNW?ref=ppx_yo2ov_dt_b_product_details&th=1",
+        "https://docs.google.com/document/d/1aBcDeFgHiJkLmNoPqRsTuVwXyZ0123456789/edit?usp=sharing",
+        "https://medium.com/@someone/why-we-moved-to-event-sourcing-3f2a1b4c5d6e",
+        "https://www.reddit.com/r/java/comments/q9x8y7/what_is_your_favourite_java_17_feature/",
+        "https://www.linkedin.com/posts/some-user_engineering-activity-6856712345678901234-AbCd?utm_source=share" +
+            "&utm_medium=member_desktop",
+        "https://www.example.com/blog/2021/10/how-we-ship?utm_source=newsletter&utm_medium=email" +
+            "&utm_campaign=oct_2021&utm_content=hero",
+        "https://shop.example.com/products/12345?ref=homepage&utm_source=facebook&utm_medium=social" +
+            "&utm_campaign=fall_sale&fbclid=IwAR2xYz0123456789abcdef",
+        "http://news.example.org/article/2021/10/19/some-long-headline-about-something-interesting.html" +
+            "?utm_source=twitter&utm_medium=social",
+        "ftp://files.example.com/pub/a.txt",
+        "https://例え.jp/パス?q=ü",
+    ]
+
+    def "sample set should round trip and shrink on average, prints README table"() {
+        given:
+        def before = SAMPLE_URLS.collect { it.getBytes(StandardCharsets.UTF_8).length }
+        def encoded = SAMPLE_URLS.collect { UrlCodec.encode(it) }
+        def table = new StringBuilder("\n| Long URL | Before | After |\n|---|---:|---:|\n")
+        SAMPLE_URLS.eachWithIndex { url, i -> table << "| `${url}` | ${before[i]} | ${encoded[i].length} |\n" }
+        def avgBefore = before.sum() / SAMPLE_URLS.size()
+        def avgAfter = encoded.sum { it.length } / SAMPLE_URLS.size()
+        table << String.format("| **Average** | **%.1f** | **%.1f** |%n", avgBefore, avgAfter)
+        logger.info(table)
+
+        expect:
+        encoded.collect { UrlCodec.decode(it) } == SAMPLE_URLS
+        avgAfter < avgBefore * 0.7
+    }
+
+    @Unroll
+    def "encode/decode should round trip #tcName url #longUrl"() {
+        given:
+        def encoded = UrlCodec.encode(longUrl)
+        logger.debug("{} -> {} bytes", longUrl.getBytes(StandardCharsets.UTF_8).length, encoded.length)
+
+        expect:
+        UrlCodec.decode(encoded) == longUrl
+
+        where:
+        tcName             | longUrl
+        "empty"            | ""
+        "prefix only"      | "https://www.youtube.com/watch?v="
+        "littleTree"       | "https://www.wikipedia.org/wiki/TinyURL"
+        "with params"      | "https://duckduckgo.com/?t=ffab&q=stord&ia=web"
+        "with URL encoded" | "https://www.google.com/maps/place/817+W.+Peachtree+St.+NW+Suite+200+Atlanta%2C+GA+30308"
+        "unknown scheme"   | "ftp://files.example.com/pub/a.txt"
+        "non ascii"        | "https://例え.jp/パス?q=ü"
+        "tracking params"  | "https://shop.example.com/products/12345?ref=homepage&utm_source=facebook" +
+            "&utm_medium=social&utm_campaign=fall_sale&fbclid=IwAR2xYz0123456789abcdef"
+    }
+
+    def "encode should reject url longer than MAX_URL_BYTES"() {
+        when:
+        UrlCodec.encode("https://www.example.com/" + "a" * UrlCodec.MAX_URL_BYTES)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "encode should use longest matching scheme/host prefix"() {
+        expect:
+        UrlCodec.encode("https://www.youtube.com/watch?v=dQw4w9WgXcQ") ==
+            ([0x0a] + "dQw4w9WgXcQ".getBytes(StandardCharsets.UTF_8).toList()) as byte[]
+    }
+
+    @Unroll
+    def "decode should reject #problem"() {
+        when:
+        UrlCodec.decode(encoded as byte[])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        problem                | encoded
+        "null"                 | null
+        "empty"                | []
+        "unknown prefix index" | [0x7f, 0x61]
+        "corrupt deflate"      | [0x80, 0xff, 0xff, 0xff]
+        "truncated deflate"    | UrlCodec.encode("https://www.example.com/blog/?utm_source=a&utm_medium=b")[0..2]
+        "inflates too big"     | deflatedHeaderAnd("a" * (UrlCodec.MAX_URL_BYTES + 1))
+    }
+
+    // Deflated without the dictionary, which decodes just the same as it's never referred to.
+    private static List<Integer> deflatedHeaderAnd(String remainder) {
+        def deflater = new Deflater(Deflater.BEST_COMPRESSION, true)
+        deflater.setInput(remainder.getBytes(StandardCharsets.UTF_8))
+        deflater.finish()
+        def buf = new byte[remainder.length()]
+        def n = deflater.deflate(buf)
+        deflater.end()
+        return [0x80] + (buf[0..<n] as List<Integer>)
+    }
+}